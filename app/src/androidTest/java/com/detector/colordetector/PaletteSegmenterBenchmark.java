@@ -0,0 +1,68 @@
+package com.detector.colordetector;
+
+import android.content.Context;
+import android.widget.TextView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Frame time of the palette overlay on the device, run with connectedAndroidTest.
+ * apply() is measured end to end, including the copies of the frame out of and back into the Mat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PaletteSegmenterBenchmark {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final double FRAME_TIME_TARGET_MS = 33;
+
+    @BeforeClass
+    public static void initOpenCV() {
+        assertTrue(OpenCVLoader.initLocal());
+    }
+
+    @Test
+    public void apply_1080pFitsFrameTime() {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        TextView[] textView = new TextView[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> textView[0] = new TextView(appContext));
+        ColorCalculator colorCalculator = new ColorCalculator(appContext.getAssets(), textView[0]);
+        PaletteSegmenter segmenter = colorCalculator.createPaletteSegmenter();
+
+        Mat source = new Mat(HEIGHT, WIDTH, CvType.CV_8UC4);
+        Core.randu(source, 0, 256);
+        Mat frame = new Mat();
+
+        long[] timesNs = new long[30];
+        for (int warmUp = 0; warmUp < 10; warmUp++) {
+            source.copyTo(frame);
+            segmenter.apply(frame);
+        }
+        for (int i = 0; i < timesNs.length; i++) {
+            source.copyTo(frame);
+            long start = System.nanoTime();
+            segmenter.apply(frame);
+            timesNs[i] = System.nanoTime() - start;
+        }
+        segmenter.shutdown();
+        source.release();
+        frame.release();
+
+        Arrays.sort(timesNs);
+        double medianMs = timesNs[timesNs.length / 2] / 1e6;
+        assertTrue("Median frame time of " + medianMs + " ms on " + Runtime.getRuntime().availableProcessors() + " cores",
+                medianMs < FRAME_TIME_TARGET_MS);
+    }
+}
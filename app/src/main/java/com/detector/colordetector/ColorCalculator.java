@@ -42,10 +42,12 @@ public class ColorCalculator {
     private final String SETNAME = "colorsetCut.csv";
     public static final int ENGLISH = 7;
     public static final int FRENCH = 8;
+    protected static final double SATURATION_GAIN = 2;
     private final Mat mCIELab;
     private HashMap<String, List<Double>> colorSetCIE = new HashMap<>();
     private boolean isRunning;
     private final TextView textView;
+    private volatile ColorHistory history;
 
     protected ColorCalculator(AssetManager assets, TextView textView) {
         mCIELab = new Mat();
@@ -54,6 +56,10 @@ public class ColorCalculator {
         this.textView = textView;
     }
 
+    protected void setHistory(ColorHistory history) {
+        this.history = history;
+    }
+
     protected void computeNewMedian(Mat newRgba) {
         if (newRgba == null || newRgba.empty()) {
             Log.e(TAG, "New frame is null or empty.");
@@ -80,7 +86,7 @@ public class ColorCalculator {
 
         List<Mat> hsvChannels = new ArrayList<>();
         Core.split(hsv, hsvChannels);
-        Core.multiply(hsvChannels.get(1), new Scalar(2), hsvChannels.get(1)); // Increase the saturation
+        Core.multiply(hsvChannels.get(1), new Scalar(SATURATION_GAIN), hsvChannels.get(1)); // Increase the saturation
         Core.merge(hsvChannels, hsv);
         cvtColor(hsv, rgba, COLOR_HSV2RGB);
         return rgba;
@@ -92,9 +98,19 @@ public class ColorCalculator {
             return;
         }
 
-        String medianName = getNameCIE(computeAverage(mediansColor));
+        Scalar averageColor = computeAverage(mediansColor);
+        String medianName = getNameCIE(averageColor);
         mediansColor.clear();
         textView.post(() -> textView.setText(medianName));
+        recordInHistory(averageColor, medianName);
+    }
+
+    private void recordInHistory(Scalar color, String name) {
+        ColorHistory history = this.history;
+        if (history == null || name.isEmpty()) {
+            return;
+        }
+        history.append(System.currentTimeMillis(), color.val[0], color.val[1], color.val[2], name);
     }
 
     private Scalar computeAverage(List<Scalar> scalars) {
@@ -124,7 +140,9 @@ public class ColorCalculator {
 
             while ((line = reader.readLine()) != null) {
                 String[] elt = line.split(";");
-                set.put(elt[lang], new ArrayList<>(Arrays.asList(Double.parseDouble(elt[4]), Double.parseDouble(elt[5]), Double.parseDouble(elt[6]))));
+                // CIE L, A, B then R, G, B (the RGB values are used to paint the palette overlay)
+                set.put(elt[lang], new ArrayList<>(Arrays.asList(Double.parseDouble(elt[4]), Double.parseDouble(elt[5]), Double.parseDouble(elt[6]),
+                        Double.parseDouble(elt[1]), Double.parseDouble(elt[2]), Double.parseDouble(elt[3]))));
             }
             reader.close();
         } catch (IOException e) {
@@ -209,12 +227,24 @@ public class ColorCalculator {
 
     private record DistanceResult(String colorName, double distance) {}
 
-    private final double k_L = 1.0, k_C = 1.0, k_H = 1.0;
-    private final double deg360InRad = toRadians(360.0);
-    private final double deg180InRad = toRadians(180.0);
-    private final double pow25To7 = Math.pow(25, 7);
+    protected PaletteSegmenter createPaletteSegmenter() {
+        List<List<Double>> colors = new ArrayList<>(colorSetCIE.values());
+        double[][] lab = new double[colors.size()][];
+        int[] rgb = new int[colors.size()];
+        for (int i = 0; i < colors.size(); i++) {
+            List<Double> color = colors.get(i);
+            lab[i] = new double[]{color.get(0), color.get(1), color.get(2)};
+            rgb[i] = (color.get(3).intValue() << 16) | (color.get(4).intValue() << 8) | color.get(5).intValue();
+        }
+        return new PaletteSegmenter(lab, rgb);
+    }
+
+    private static final double k_L = 1.0, k_C = 1.0, k_H = 1.0;
+    private static final double deg360InRad = toRadians(360.0);
+    private static final double deg180InRad = toRadians(180.0);
+    private static final double pow25To7 = Math.pow(25, 7);
 
-    private double getDistanceCIE2000(Scalar color1, Scalar color2) {
+    protected static double getDistanceCIE2000(Scalar color1, Scalar color2) {
         double l1 = color1.val[0];
         double a1 = color1.val[1];
         double b1 = color1.val[2];
@@ -325,7 +355,7 @@ public class ColorCalculator {
                         Math.pow(deltaHPrime / (k_H * S_H), 2.0) +
                         (R_T * (deltaCPrime / (k_C * S_C)) * (deltaHPrime / (k_H * S_H))));
     }
-    private double toRadians(double degrees) {
+    private static double toRadians(double degrees) {
         return degrees * Math.PI / 180;
     }
     public static double toDegrees(double radians) {
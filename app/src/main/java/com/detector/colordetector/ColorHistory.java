@@ -0,0 +1,236 @@
+package com.detector.colordetector;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/// This class keeps the history of the detected colors in a fixed size binary ring file
+/// The file is memory-mapped so appending an entry is only a copy into the mapping, the OS
+/// flushes the pages to disk on its own (or when flush() is called)
+/// Opening, flushing and closing do disk I/O and must run off the UI thread
+/// Each record carries a sequence number and a CRC32, so a record torn by a crash is detected
+/// and discarded when the file is opened again
+
+public class ColorHistory implements Closeable {
+    private static final int MAGIC = 0x434F4C48; // "COLH"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16; // magic, version, capacity, record size
+
+    protected static final int NAME_BYTES = 40;
+    // seq (8) + timestamp (8) + L, A, B (3 * 4) + name length (2) + name + crc (4)
+    protected static final int RECORD_SIZE = 8 + 8 + 3 * 4 + 2 + NAME_BYTES + 4;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final CRC32 crc = new CRC32();
+
+    private long nextSeq; // sequence number of the next appended entry
+    private int size;
+
+    public record Entry(long timestamp, double l, double a, double b, String name) {}
+
+    protected ColorHistory(File path, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+
+        long fileSize = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        boolean isValid = channel.size() == fileSize && hasValidHeader(capacity);
+        if (!isValid) {
+            // Unknown layout or different capacity: the old history is dropped
+            channel.truncate(0);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.capacity = capacity;
+
+        if (isValid) {
+            recover();
+        } else {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, capacity);
+            buffer.putInt(12, RECORD_SIZE);
+            buffer.force();
+            nextSeq = 1;
+            size = 0;
+        }
+    }
+
+    private boolean hasValidHeader(int capacity) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                && header.getInt(8) == capacity && header.getInt(12) == RECORD_SIZE;
+    }
+
+    //The newest valid record gives the write position, the records older than it are the history
+    private void recover() {
+        long maxSeq = 0;
+        long minSeq = Long.MAX_VALUE;
+        for (int slot = 0; slot < capacity; slot++) {
+            long seq = readValidSeq(slot);
+            if (seq > 0) {
+                maxSeq = Math.max(maxSeq, seq);
+                minSeq = Math.min(minSeq, seq);
+            }
+        }
+        nextSeq = maxSeq + 1;
+        if (maxSeq == 0) {
+            size = 0;
+            return;
+        }
+        // Stop at the first missing or corrupted record going backward
+        size = 0;
+        for (long seq = maxSeq; seq >= minSeq && size < capacity; seq--) {
+            if (readValidSeq(slotOf(seq)) != seq) {
+                break;
+            }
+            size++;
+        }
+    }
+
+    // Return the sequence number of the record in the slot, or 0 if the record is empty or torn
+    private long readValidSeq(int slot) {
+        readRecord(slot);
+        ByteBuffer rec = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+        long seq = rec.getLong(0);
+        if (seq <= 0 || slotOf(seq) != slot) {
+            return 0;
+        }
+        crc.reset();
+        crc.update(record, 0, CRC_OFFSET);
+        return (int) crc.getValue() == rec.getInt(CRC_OFFSET) ? seq : 0;
+    }
+
+    private void readRecord(int slot) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offsetOf(slot));
+        view.get(record, 0, RECORD_SIZE);
+    }
+
+    private int slotOf(long seq) {
+        return (int) ((seq - 1) % capacity);
+    }
+
+    private int offsetOf(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    protected synchronized void append(long timestamp, double l, double a, double b, String name) {
+        byte[] nameBytes = encodeName(name);
+        ByteBuffer rec = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+        rec.putLong(nextSeq)
+                .putLong(timestamp)
+                .putFloat((float) l)
+                .putFloat((float) a)
+                .putFloat((float) b)
+                .putShort((short) nameBytes.length)
+                .put(nameBytes);
+        for (int i = rec.position(); i < CRC_OFFSET; i++) {
+            record[i] = 0;
+        }
+        crc.reset();
+        crc.update(record, 0, CRC_OFFSET);
+        rec.putInt(CRC_OFFSET, (int) crc.getValue());
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(offsetOf(slotOf(nextSeq)));
+        view.put(record, 0, RECORD_SIZE);
+        nextSeq++;
+        size = Math.min(size + 1, capacity);
+    }
+
+    //Cut the name to NAME_BYTES without splitting a multi-byte character
+    private static byte[] encodeName(String name) {
+        String trimmed = name == null ? "" : name.trim();
+        byte[] bytes = trimmed.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= NAME_BYTES) {
+            return bytes;
+        }
+        int end = NAME_BYTES;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        byte[] cut = new byte[end];
+        System.arraycopy(bytes, 0, cut, 0, end);
+        return cut;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /// Return at most `limit` entries, newest first, skipping the `offset` newest ones
+    public synchronized List<Entry> read(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("The offset and the limit must not be negative.");
+        }
+        int count = Math.max(0, Math.min(limit, size - offset));
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            readRecord(slotOf(nextSeq - 1 - offset - i));
+            entries.add(decode());
+        }
+        return entries;
+    }
+
+    private Entry decode() {
+        ByteBuffer rec = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+        rec.position(8);
+        long timestamp = rec.getLong();
+        float l = rec.getFloat();
+        float a = rec.getFloat();
+        float b = rec.getFloat();
+        int nameLength = Math.min(rec.getShort(), NAME_BYTES);
+        String name = new String(record, rec.position(), nameLength, StandardCharsets.UTF_8);
+        return new Entry(timestamp, l, a, b, name);
+    }
+
+    /// Write the whole history as CSV, oldest first, with the same separator as colorset.csv
+    public void exportCsv(Writer writer) throws IOException {
+        List<Entry> entries = read(0, capacity);
+        Collections.reverse(entries);
+        writer.write("TIMESTAMP;CIE_L;CIE_A;CIE_B;NAME\n");
+        for (Entry entry : entries) {
+            writer.write(String.format(Locale.ROOT, "%d;%.2f;%.2f;%.2f;%s\n",
+                    entry.timestamp(), entry.l(), entry.a(), entry.b(), entry.name().replace(';', ',')));
+        }
+        writer.flush();
+    }
+
+    /// Force the mapped pages to disk, to be called from a background thread (e.g. after onPause)
+    // Not synchronized: the mapping stays valid while it is forced, so append() does not wait for the sync
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close(); // the mapping stays valid until it is garbage collected
+        file.close();
+    }
+}
@@ -26,6 +26,8 @@ import org.opencv.android.OpenCVLoader;
 import org.opencv.core.Mat;
 import org.opencv.core.Rect;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -37,8 +39,15 @@ public class MainActivity extends CameraActivity implements CameraBridgeViewBase
 
     private static final String TAG = "MainActivity";
     private static final int CAMERA_PERMISSION_REQUEST_CODE = 200;
+    private static final String HISTORY_FILE = "color_history.bin";
+    private static final int HISTORY_CAPACITY = 10000;
+    // Shared by all the instances of the activity, so the history closed by a destroyed instance
+    // is always closed before a new instance opens it again
+    private static final ExecutorService executorServiceHistory = Executors.newSingleThreadExecutor();
     private CameraBridgeViewBase mOpenCvCameraView;
     private ColorCalculator colorCalculator;
+    private ColorHistory colorHistory; // only used on executorServiceHistory
+    private PaletteMode paletteMode;
     private DrawingUtils drawingUtils;
     private Window window;
     private ExecutorService executorServiceComputeMedians;
@@ -60,6 +69,7 @@ public class MainActivity extends CameraActivity implements CameraBridgeViewBase
         askCameraPermission();
 
         colorCalculator = new ColorCalculator(getAssets(), findViewById(R.id.color_txt));
+        openHistory();
         drawingUtils = new DrawingUtils();
 
         scheduleComputationOfNewName();
@@ -71,6 +81,31 @@ public class MainActivity extends CameraActivity implements CameraBridgeViewBase
             Intent intent = new Intent(MainActivity.this, PrivacyPolicyActivity.class);
             startActivity(intent);
         });
+
+        // The palette mode survives configuration changes (e.g. a rotation), see onRetainNonConfigurationInstance
+        paletteMode = (PaletteMode) getLastNonConfigurationInstance();
+        if (paletteMode == null)
+            paletteMode = new PaletteMode();
+        View paletteModeButton = findViewById(R.id.button_palette_mode);
+        paletteModeButton.setOnClickListener(v -> paletteMode.toggle(colorCalculator::createPaletteSegmenter));
+    }
+
+    @Override
+    public Object onRetainNonConfigurationInstance() {
+        return paletteMode;
+    }
+
+    // Opening the history reads the whole file, so it is done off the UI thread
+    private void openHistory() {
+        File path = new File(getFilesDir(), HISTORY_FILE);
+        executorServiceHistory.submit(() -> {
+            try {
+                colorHistory = new ColorHistory(path, HISTORY_CAPACITY);
+                colorCalculator.setHistory(colorHistory);
+            } catch (Exception e) {
+                Log.e(TAG, "Cannot open the color history, it will not be recorded", e);
+            }
+        });
     }
 
     private void scheduleComputationOfNewName() {
@@ -164,6 +199,10 @@ public class MainActivity extends CameraActivity implements CameraBridgeViewBase
 
         window.clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         scheduledExecutorService.shutdown();
+        executorServiceHistory.submit(() -> {
+            if (colorHistory != null)
+                colorHistory.flush();
+        });
     }
 
     @Override
@@ -189,6 +228,25 @@ public class MainActivity extends CameraActivity implements CameraBridgeViewBase
         window.clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         scheduledExecutorService.shutdown();
         executorServiceComputeMedians.shutdown();
+        if (!isChangingConfigurations())
+            paletteMode.release();
+        closeHistory();
+    }
+
+    private void closeHistory() {
+        ScheduledExecutorService namingExecutor = scheduledExecutorService;
+        executorServiceHistory.submit(() -> {
+            if (colorHistory == null)
+                return;
+            try {
+                colorCalculator.setHistory(null);
+                // Wait for a running computeNewName so it does not write in a closed history
+                namingExecutor.awaitTermination(1, TimeUnit.SECONDS);
+                colorHistory.close();
+            } catch (IOException | InterruptedException e) {
+                Log.e(TAG, "Error while closing the color history", e);
+            }
+        });
     }
 
     @Override
@@ -207,9 +265,15 @@ public class MainActivity extends CameraActivity implements CameraBridgeViewBase
 
         int detectionSquareSize = drawingUtils.getDetectionSquareSize(mRgba);
         Rect detectionSquare = drawingUtils.getDetectionSquare(mRgba, detectionSquareSize);
-        drawingUtils.drawSquares(mRgba, detectionSquareSize);
 
-        Mat sub = mRgba.submat(detectionSquare);
+        PaletteSegmenter segmenter = paletteMode.getActiveSegmenter();
+        boolean isSegmented = segmenter != null;
+
+        // The median is computed on the real colors, not on the painted ones
+        Mat sub = isSegmented ? mRgba.submat(detectionSquare).clone() : mRgba.submat(detectionSquare);
+        if (isSegmented)
+            segmenter.apply(mRgba);
+        drawingUtils.drawSquares(mRgba, detectionSquareSize);
 
         if (executorServiceComputeMedians.isTerminated()) {
             executorServiceComputeMedians = Executors.newFixedThreadPool(1);
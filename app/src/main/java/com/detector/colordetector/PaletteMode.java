@@ -0,0 +1,69 @@
+package com.detector.colordetector;
+
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/// This class holds the state of the palette overlay mode (on/off and the PaletteSegmenter)
+/// It is kept across configuration changes, so the lookup table of the segmenter is built only once
+/// The table takes a while to build, so it is built off the UI thread the first time the mode is turned on
+
+public class PaletteMode {
+    private static final String TAG = "PaletteMode";
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private volatile PaletteSegmenter segmenter;
+    private volatile boolean isOn;
+    private boolean isBuilding;
+    private boolean isReleased;
+
+    protected void toggle(Callable<PaletteSegmenter> segmenterFactory) {
+        isOn = !isOn;
+        if (isOn) {
+            build(segmenterFactory);
+        }
+    }
+
+    private synchronized void build(Callable<PaletteSegmenter> segmenterFactory) {
+        if (segmenter != null || isBuilding || isReleased) {
+            return;
+        }
+        isBuilding = true;
+        executor.submit(() -> {
+            try {
+                setSegmenter(segmenterFactory.call());
+            } catch (Exception e) {
+                Log.e(TAG, "Error while building the palette segmenter", e);
+            } finally {
+                synchronized (this) {
+                    isBuilding = false;
+                }
+            }
+        });
+    }
+
+    // The build may end after release(), the new segmenter is then shut down right away
+    private synchronized void setSegmenter(PaletteSegmenter built) {
+        if (isReleased) {
+            built.shutdown();
+        } else {
+            segmenter = built;
+        }
+    }
+
+    /// Return the segmenter to apply on the frame, or null if the mode is off or the table is not built yet
+    protected PaletteSegmenter getActiveSegmenter() {
+        return isOn ? segmenter : null;
+    }
+
+    protected synchronized void release() {
+        isReleased = true;
+        executor.shutdownNow();
+        if (segmenter != null) {
+            segmenter.shutdown();
+            segmenter = null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.detector.colordetector;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/// This class paints every pixel of the frame with its closest color of the colorset
+/// Calling getDistanceCIE2000 for each pixel is far too slow, so the closest color of each RGB
+/// value (quantized on BITS bits per channel) is computed once in a lookup table
+/// The table goes through the same saturation boost as ColorCalculator, so the color painted under
+/// the detection square matches the name shown
+/// The frame is then classified with one table lookup per pixel, in parallel row bands
+
+public class PaletteSegmenter {
+    protected static final int BITS = 5;
+    private static final int SHIFT = 8 - BITS;
+    private static final int LEVELS = 1 << BITS;
+    private static final int CHANNELS = 4; // RGBA
+
+    private final byte[] lut = new byte[LEVELS * LEVELS * LEVELS];
+    private final byte[] paletteR;
+    private final byte[] paletteG;
+    private final byte[] paletteB;
+    private final int bands;
+    private final ExecutorService executor;
+    private byte[] frame = new byte[0];
+
+    /// @param paletteLab CIE L, A, B of each color of the colorset
+    /// @param paletteRgb 0xRRGGBB of each color, used to paint the pixels
+    protected PaletteSegmenter(double[][] paletteLab, int[] paletteRgb) {
+        if (paletteLab.length == 0 || paletteLab.length > 256 || paletteLab.length != paletteRgb.length) {
+            throw new IllegalArgumentException("The palette must contain between 1 and 256 colors.");
+        }
+        paletteR = new byte[paletteRgb.length];
+        paletteG = new byte[paletteRgb.length];
+        paletteB = new byte[paletteRgb.length];
+        for (int i = 0; i < paletteRgb.length; i++) {
+            paletteR[i] = (byte) (paletteRgb[i] >> 16);
+            paletteG[i] = (byte) (paletteRgb[i] >> 8);
+            paletteB[i] = (byte) paletteRgb[i];
+        }
+        bands = Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(bands);
+        buildLut(paletteLab);
+    }
+
+    //Each red level is computed in parallel, the table is built only once
+    private void buildLut(double[][] paletteLab) {
+        List<Callable<Void>> tasks = new ArrayList<>(LEVELS);
+        for (int r = 0; r < LEVELS; r++) {
+            int red = r;
+            tasks.add(() -> {
+                for (int g = 0; g < LEVELS; g++) {
+                    for (int b = 0; b < LEVELS; b++) {
+                        lut[(red << (2 * BITS)) | (g << BITS) | b] = (byte) closestColor(levelToRgb(red), levelToRgb(g), levelToRgb(b), paletteLab);
+                    }
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    // Center of the quantization bin
+    private static int levelToRgb(int level) {
+        return (level << SHIFT) | (1 << (SHIFT - 1));
+    }
+
+    private static int closestColor(int r, int g, int b, double[][] paletteLab) {
+        int[] enhanced = enhanceColor(r, g, b);
+        Scalar lab = rgb2CIELab(enhanced[0], enhanced[1], enhanced[2]);
+        int closest = 0;
+        double minDistance = Double.MAX_VALUE;
+        for (int i = 0; i < paletteLab.length; i++) {
+            double distance = ColorCalculator.getDistanceCIE2000(lab, new Scalar(paletteLab[i][0], paletteLab[i][1], paletteLab[i][2]));
+            if (distance < minDistance) {
+                minDistance = distance;
+                closest = i;
+            }
+        }
+        return closest;
+    }
+
+    //Same as ColorCalculator.enhanceColor: the saturation is multiplied by SATURATION_GAIN
+    //In HSV each channel is at a distance of V proportional to S, so the distances are scaled
+    private static int[] enhanceColor(int r, int g, int b) {
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        if (max == min) {
+            return new int[]{r, g, b};
+        }
+        double saturation = (max - min) / (double) max;
+        double ratio = Math.min(saturation * ColorCalculator.SATURATION_GAIN, 1.0) / saturation;
+        return new int[]{enhanceChannel(r, max, ratio), enhanceChannel(g, max, ratio), enhanceChannel(b, max, ratio)};
+    }
+
+    private static int enhanceChannel(int channel, int max, double ratio) {
+        return (int) Math.round(max - (max - channel) * ratio);
+    }
+
+    //Same conversion as cvtColor(COLOR_RGB2Lab) on normalized floats (sRGB, D65)
+    private static Scalar rgb2CIELab(int r, int g, int b) {
+        double rl = srgbToLinear(r / 255.0);
+        double gl = srgbToLinear(g / 255.0);
+        double bl = srgbToLinear(b / 255.0);
+
+        double x = (0.412453 * rl + 0.357580 * gl + 0.180423 * bl) / 0.950456;
+        double y = 0.212671 * rl + 0.715160 * gl + 0.072169 * bl;
+        double z = (0.019334 * rl + 0.119193 * gl + 0.950227 * bl) / 1.088754;
+
+        double fx = labF(x);
+        double fy = labF(y);
+        double fz = labF(z);
+        double l = y > 0.008856 ? 116.0 * fy - 16.0 : 903.3 * y;
+        return new Scalar(l, 500.0 * (fx - fy), 200.0 * (fy - fz));
+    }
+
+    private static double srgbToLinear(double c) {
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static double labF(double t) {
+        return t > 0.008856 ? Math.cbrt(t) : 7.787 * t + 16.0 / 116.0;
+    }
+
+    /// Return the index in the palette of the closest color of the RGB value
+    protected int classify(int r, int g, int b) {
+        return lut[((r >> SHIFT) << (2 * BITS)) | ((g >> SHIFT) << BITS) | (b >> SHIFT)] & 0xFF;
+    }
+
+    /// Replace each pixel of the RGBA frame by its closest color, the alpha channel is kept
+    public void apply(Mat mRgba) {
+        if (mRgba.type() != CvType.CV_8UC4 || !mRgba.isContinuous()) {
+            throw new IllegalArgumentException("The frame must be a continuous RGBA Mat.");
+        }
+        int length = (int) mRgba.total() * CHANNELS;
+        if (frame.length != length) {
+            frame = new byte[length];
+        }
+        mRgba.get(0, 0, frame);
+        segment(frame, mRgba.cols(), mRgba.rows());
+        mRgba.put(0, 0, frame);
+    }
+
+    /// Replace each pixel of the RGBA buffer by its closest color, the rows are split in one band per core
+    protected void segment(byte[] rgba, int width, int height) {
+        int bandHeight = (height + bands - 1) / bands;
+        List<Callable<Void>> tasks = new ArrayList<>(bands);
+        for (int start = 0; start < height; start += bandHeight) {
+            int from = start * width * CHANNELS;
+            int to = Math.min(start + bandHeight, height) * width * CHANNELS;
+            tasks.add(() -> {
+                segmentBand(rgba, from, to);
+                return null;
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    private void segmentBand(byte[] rgba, int from, int to) {
+        for (int i = from; i < to; i += CHANNELS) {
+            int index = lut[(((rgba[i] & 0xFF) >> SHIFT) << (2 * BITS))
+                    | (((rgba[i + 1] & 0xFF) >> SHIFT) << BITS)
+                    | ((rgba[i + 2] & 0xFF) >> SHIFT)] & 0xFF;
+            rgba[i] = paletteR[index];
+            rgba[i + 1] = paletteG[index];
+            rgba[i + 2] = paletteB[index];
+        }
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,132 @@
+package com.detector.colordetector;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ColorHistoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_returnsNewestFirstWithPaging() throws IOException {
+        try (ColorHistory history = new ColorHistory(folder.newFile(), 10)) {
+            for (int i = 0; i < 5; i++) {
+                history.append(i, 50, i, -i, "Color " + i);
+            }
+            List<ColorHistory.Entry> page = history.read(1, 2);
+            assertEquals(2, page.size());
+            assertEquals("Color 3", page.get(0).name());
+            assertEquals("Color 2", page.get(1).name());
+            assertEquals(3.0, page.get(0).a(), 1e-6);
+            assertTrue(history.read(5, 10).isEmpty());
+        }
+    }
+
+    @Test
+    public void append_overwritesOldestWhenFull() throws IOException {
+        File path = folder.newFile();
+        try (ColorHistory history = new ColorHistory(path, 3)) {
+            for (int i = 0; i < 7; i++) {
+                history.append(i, 50, 0, 0, "Color " + i);
+            }
+            assertEquals(3, history.size());
+            assertEquals("Color 6", history.read(0, 1).get(0).name());
+            assertEquals("Color 4", history.read(2, 1).get(0).name());
+        }
+        assertEquals(16 + 3L * ColorHistory.RECORD_SIZE, path.length());
+    }
+
+    @Test
+    public void reopen_keepsHistory() throws IOException {
+        File path = folder.newFile();
+        try (ColorHistory history = new ColorHistory(path, 4)) {
+            for (int i = 0; i < 6; i++) {
+                history.append(i, 50, 0, 0, "Color " + i);
+            }
+        }
+        try (ColorHistory history = new ColorHistory(path, 4)) {
+            assertEquals(4, history.size());
+            assertEquals("Color 5", history.read(0, 1).get(0).name());
+            history.append(6, 50, 0, 0, "Color 6");
+            assertEquals("Color 6", history.read(0, 1).get(0).name());
+            assertEquals("Color 3", history.read(3, 1).get(0).name());
+        }
+    }
+
+    @Test
+    public void reopen_discardsTornFinalRecord() throws IOException {
+        File path = folder.newFile();
+        try (ColorHistory history = new ColorHistory(path, 8)) {
+            for (int i = 0; i < 5; i++) {
+                history.append(i, 50, 0, 0, "Color " + i);
+            }
+        }
+        // Simulate a crash in the middle of the last write: only half of the record reached the disk
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            long lastRecord = 16 + 4L * ColorHistory.RECORD_SIZE;
+            file.seek(lastRecord + ColorHistory.RECORD_SIZE / 2);
+            file.write(new byte[ColorHistory.RECORD_SIZE / 2]);
+        }
+        try (ColorHistory history = new ColorHistory(path, 8)) {
+            assertEquals(4, history.size());
+            assertEquals("Color 3", history.read(0, 1).get(0).name());
+            history.append(5, 50, 0, 0, "Color 5");
+            assertEquals(5, history.size());
+            assertEquals("Color 5", history.read(0, 1).get(0).name());
+        }
+    }
+
+    @Test
+    public void reopen_withOtherCapacityStartsEmpty() throws IOException {
+        File path = folder.newFile();
+        try (ColorHistory history = new ColorHistory(path, 4)) {
+            history.append(0, 50, 0, 0, "Red");
+        }
+        try (ColorHistory history = new ColorHistory(path, 6)) {
+            assertEquals(0, history.size());
+        }
+    }
+
+    @Test
+    public void append_cutsLongNames() throws IOException {
+        try (ColorHistory history = new ColorHistory(folder.newFile(), 2)) {
+            history.append(0, 50, 0, 0, "\u00e9".repeat(ColorHistory.NAME_BYTES));
+            String name = history.read(0, 1).get(0).name();
+            assertEquals("\u00e9".repeat(ColorHistory.NAME_BYTES / 2), name);
+        }
+    }
+
+    @Test
+    public void append_doesNotSplitCharacterWhenCuttingName() throws IOException {
+        try (ColorHistory history = new ColorHistory(folder.newFile(), 2)) {
+            // The cut at NAME_BYTES falls in the middle of a 2-byte UTF-8 character
+            history.append(0, 50, 0, 0, "a" + "\u00e9".repeat(ColorHistory.NAME_BYTES));
+            String name = history.read(0, 1).get(0).name();
+            assertEquals("a" + "\u00e9".repeat((ColorHistory.NAME_BYTES - 2) / 2), name);
+            assertEquals(ColorHistory.NAME_BYTES - 1, name.getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+
+    @Test
+    public void exportCsv_writesOldestFirst() throws IOException {
+        try (ColorHistory history = new ColorHistory(folder.newFile(), 4)) {
+            history.append(1000, 53.39, 45.12, 21.63, " Indian Red");
+            history.append(2000, 66.15, 43.15, 18.95, "Light Coral");
+            StringWriter writer = new StringWriter();
+            history.exportCsv(writer);
+            assertEquals("TIMESTAMP;CIE_L;CIE_A;CIE_B;NAME\n"
+                    + "1000;53.39;45.12;21.63;Indian Red\n"
+                    + "2000;66.15;43.15;18.95;Light Coral\n", writer.toString());
+        }
+    }
+}
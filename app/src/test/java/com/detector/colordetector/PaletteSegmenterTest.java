@@ -0,0 +1,58 @@
+package com.detector.colordetector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PaletteSegmenterTest {
+    private PaletteSegmenter segmenter;
+
+    @Before
+    public void setUp() {
+        double[][] lab = {{0, 0, 0}, {100, 0, 0}, {53.24, 80.09, 67.20}, {87.73, -86.18, 83.18}, {32.30, 79.19, -107.86}, {53.59, 0, 0}};
+        int[] rgb = {0x000000, 0xFFFFFF, 0xFF0000, 0x00FF00, 0x0000FF, 0x808080};
+        segmenter = new PaletteSegmenter(lab, rgb);
+    }
+
+    @After
+    public void tearDown() {
+        segmenter.shutdown();
+    }
+
+    @Test
+    public void classify_returnsClosestColor() {
+        assertEquals(0, segmenter.classify(10, 5, 8));
+        assertEquals(1, segmenter.classify(250, 250, 245));
+        assertEquals(2, segmenter.classify(220, 30, 20));
+        assertEquals(3, segmenter.classify(40, 230, 50));
+        assertEquals(4, segmenter.classify(20, 30, 220));
+    }
+
+    // Without the saturation boost of the name computation this pale red is closer to gray
+    @Test
+    public void classify_appliesSameSaturationBoostAsName() {
+        assertEquals(2, segmenter.classify(150, 110, 110));
+        assertEquals(5, segmenter.classify(128, 128, 128));
+    }
+
+    @Test
+    public void segment_paintsPixelsAndKeepsAlpha() {
+        int width = 3, height = 5;
+        byte[] rgba = new byte[width * height * 4];
+        for (int i = 0; i < rgba.length; i += 4) {
+            rgba[i] = (byte) 220;
+            rgba[i + 1] = 30;
+            rgba[i + 2] = 20;
+            rgba[i + 3] = (byte) i;
+        }
+        segmenter.segment(rgba, width, height);
+        for (int i = 0; i < rgba.length; i += 4) {
+            assertEquals((byte) 0xFF, rgba[i]);
+            assertEquals(0, rgba[i + 1]);
+            assertEquals(0, rgba[i + 2]);
+            assertEquals((byte) i, rgba[i + 3]);
+        }
+    }
+}